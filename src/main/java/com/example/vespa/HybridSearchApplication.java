@@ -2,7 +2,11 @@ package com.example.vespa;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Main application demonstrating Vespa hybrid search capabilities
@@ -11,6 +15,7 @@ import java.util.List;
  * 1. Index documents with both text and embeddings
  * 2. Perform hybrid search (combining keyword and semantic search)
  * 3. Compare results from keyword-only, semantic-only, and hybrid search
+ * 4. Rerank the top hybrid candidates and compare quality against latency
  */
 public class HybridSearchApplication {
     
@@ -57,6 +62,10 @@ public class HybridSearchApplication {
             List<SearchResult> results2 = client.hybridSearch(query2, embedding2, 5);
             printResults(results2);
             
+            // Step 4: Rerank a small candidate set and report quality vs latency
+            System.out.println("\n\n=== Reranking Quality vs Latency ===\n");
+            printRerankReport(client);
+            
         } catch (IOException e) {
             System.err.println("Error: " + e.getMessage());
             e.printStackTrace();
@@ -244,9 +253,99 @@ public class HybridSearchApplication {
             )
         );
         
+        // Skip near-duplicates before feeding so they don't bloat the index or crowd the top-k
+        NearDuplicateDetector detector = new NearDuplicateDetector(100_000, 0.8);
         for (Document doc : documents) {
+            String duplicateOf = detector.findDuplicate(doc);
+            if (duplicateOf != null) {
+                System.out.println("Skipping near-duplicate document: " + doc.getId() + " (duplicate of " + duplicateOf + ")");
+                continue;
+            }
             client.indexDocument(doc);
         }
+        System.out.println(String.format("Deduplication: %d of %d documents skipped, %d bytes saved",
+            detector.getDuplicatesSkipped(),
+            detector.getDocumentsSeen(),
+            detector.getBytesSaved()));
+    }
+    
+    /**
+     * One way of producing the final top-k for the rerank report
+     */
+    private interface Stage {
+        List<SearchResult> run() throws IOException;
+    }
+    
+    private static void printRerankReport(VespaClient client) throws IOException {
+        int candidates = 20;
+        int k = 5;
+        int runs = 5;
+        
+        // Hand-picked relevant documents for each demo query, used as ground truth
+        Map<String, Set<String>> relevantDocs = new LinkedHashMap<>();
+        relevantDocs.put("machine learning algorithms", 
+            new HashSet<>(Arrays.asList("doc1", "doc2", "doc5", "doc10", "doc23")));
+        relevantDocs.put("data science", 
+            new HashSet<>(Arrays.asList("doc3", "doc4", "doc24")));
+        
+        // One shared reranker, as a server would use; its threads are started up front
+        try (Reranker reranker = new Reranker(new Reranker.TermOverlapScorer(), 4, 4)) {
+            for (Map.Entry<String, Set<String>> entry : relevantDocs.entrySet()) {
+                String query = entry.getKey();
+                Set<String> relevant = entry.getValue();
+                List<Float> queryEmbedding = EmbeddingGenerator.generateEmbedding(query);
+                
+                System.out.println(String.format("Query: \"%s\", %d candidates, quality = recall@%d of %d relevant docs", 
+                    query, candidates, k, relevant.size()));
+                System.out.println(String.format("%-28s %12s %12s", "Stage", "p50 ms", "p50 Recall@" + k));
+                
+                printReportRow("hybrid (no rerank)", runs, relevant, k, 
+                    () -> client.hybridSearch(query, queryEmbedding, candidates));
+                
+                for (long budgetMillis : new long[] {0, 1, 5, 50}) {
+                    printReportRow("client rerank, budget " + budgetMillis + "ms", runs, relevant, k, 
+                        () -> reranker.rerank(query, client.hybridSearch(query, queryEmbedding, candidates), 
+                            candidates, budgetMillis));
+                }
+                
+                printReportRow("global-phase (rerank)", runs, relevant, k, 
+                    () -> client.hybridSearch(query, queryEmbedding, candidates, "rerank"));
+                System.out.println();
+            }
+        }
+    }
+    
+    /**
+     * Run a stage once untimed to warm up, then report the median latency and recall over
+     * the timed runs. Each run is timed from sending the query to having the final top-k.
+     */
+    private static void printReportRow(String name, int runs, Set<String> relevant, int k, Stage stage) 
+            throws IOException {
+        stage.run();
+        
+        double[] latencies = new double[runs];
+        double[] recalls = new double[runs];
+        for (int run = 0; run < runs; run++) {
+            long start = System.nanoTime();
+            List<SearchResult> results = stage.run();
+            latencies[run] = (System.nanoTime() - start) / 1_000_000.0;
+            
+            int found = 0;
+            for (int i = 0; i < Math.min(k, results.size()); i++) {
+                if (relevant.contains(results.get(i).getId())) {
+                    found++;
+                }
+            }
+            recalls[run] = relevant.isEmpty() ? 0.0 : (double) found / relevant.size();
+        }
+        System.out.println(String.format("%-28s %12.1f %12.2f", name, median(latencies), median(recalls)));
+    }
+    
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int mid = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[mid] : (sorted[mid - 1] + sorted[mid]) / 2.0;
     }
     
     private static void printResults(List<SearchResult> results) {
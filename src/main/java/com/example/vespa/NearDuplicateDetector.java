@@ -0,0 +1,349 @@
+package com.example.vespa;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Ingest-time near-duplicate detection using MinHash signatures and LSH.
+ *
+ * Each document's title and content are shingled into word 3-grams and reduced to a
+ * fixed-size MinHash signature. Signatures are split into bands and bucketed in an
+ * in-memory LSH index, so candidates are found without comparing against every
+ * previously seen document. Only the most recent {@code capacity} documents are kept,
+ * which bounds memory when streaming over very large corpora.
+ *
+ * Each retained document costs roughly 1 KB: about 530 bytes for its signature,
+ * 128 to 256 bytes in the LSH table, plus its id string. With the embedding check
+ * enabled, add 4 bytes per embedding dimension (about 1.5 KB for 384 dimensions).
+ * Size {@code capacity} accordingly; 100,000 documents take roughly 100 MB.
+ *
+ * Documents with no words in their title or content are never reported as
+ * duplicates, since they have nothing to compare on.
+ *
+ * This class is not thread-safe; feed documents to it from a single thread.
+ */
+public class NearDuplicateDetector {
+    private static final int SHINGLE_SIZE = 3;
+    private static final int NUM_HASHES = 128;
+    private static final int BANDS = 16;
+    private static final int ROWS_PER_BAND = NUM_HASHES / BANDS;
+    // Documents per LSH bucket; version chains and mirrors share buckets, so keep more than one
+    private static final int MAX_SLOTS_PER_BUCKET = 8;
+    private static final int EMPTY = -1;
+
+    private final int capacity;
+    private final double jaccardThreshold;
+    private final double cosineThreshold;
+
+    private final long[] hashMultipliers = new long[NUM_HASHES];
+    private final long[] hashOffsets = new long[NUM_HASHES];
+
+    // Circular buffer of retained documents; nextSlot points at the oldest entry once it is full
+    private final String[] ids;
+    private final int[][] signatures;
+    private final float[][] embeddings;
+    // LSH index as an open-addressing table with linear probing. Each entry is
+    // slot * BANDS + band; its key is recomputed from the stored signature, so no keys are kept
+    private final int[] bandTable;
+    private final int bandTableMask;
+    private int nextSlot = 0;
+    private int size = 0;
+
+    private long documentsSeen = 0;
+    private long duplicatesSkipped = 0;
+    private long bytesSaved = 0;
+
+    /**
+     * Create a detector with MinHash-only verification.
+     *
+     * @param capacity maximum number of documents retained in the LSH index
+     * @param jaccardThreshold estimated Jaccard similarity at or above which a document is a duplicate
+     */
+    public NearDuplicateDetector(int capacity, double jaccardThreshold) {
+        this(capacity, jaccardThreshold, 0.0);
+    }
+
+    /**
+     * Create a detector that additionally requires embedding cosine similarity to reach
+     * {@code cosineThreshold} before treating a candidate as a duplicate. A threshold of
+     * zero disables the embedding check and avoids retaining embeddings.
+     */
+    public NearDuplicateDetector(int capacity, double jaccardThreshold, double cosineThreshold) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        if (jaccardThreshold < 0 || jaccardThreshold > 1) {
+            throw new IllegalArgumentException("jaccardThreshold must be in [0, 1]: " + jaccardThreshold);
+        }
+        if (cosineThreshold < 0 || cosineThreshold > 1) {
+            throw new IllegalArgumentException("cosineThreshold must be in [0, 1]: " + cosineThreshold);
+        }
+        this.capacity = capacity;
+        this.jaccardThreshold = jaccardThreshold;
+        this.cosineThreshold = cosineThreshold;
+        this.ids = new String[capacity];
+        this.signatures = new int[capacity][];
+        this.embeddings = cosineThreshold > 0 ? new float[capacity][] : null;
+
+        // At most capacity * BANDS entries; keep the table at or below half full
+        long entries = (long) capacity * BANDS;
+        if (entries * 2 > 1 << 30) {
+            throw new IllegalArgumentException("capacity too large: " + capacity);
+        }
+        int tableSize = Integer.highestOneBit((int) (entries * 2 - 1)) << 1;
+        this.bandTable = new int[tableSize];
+        this.bandTableMask = tableSize - 1;
+        Arrays.fill(bandTable, EMPTY);
+
+        Random random = new Random(42); // Fixed seed so signatures are stable across runs
+        for (int i = 0; i < NUM_HASHES; i++) {
+            hashMultipliers[i] = random.nextLong() | 1L;
+            hashOffsets[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Check a document against previously accepted documents.
+     * Returns the id of the retained document it duplicates, or null if it is new,
+     * in which case it is added to the index.
+     */
+    public String findDuplicate(Document doc) {
+        documentsSeen++;
+        int[] signature = signature(text(doc));
+        if (signature == null) {
+            return null;
+        }
+        float[] embedding = embeddings != null ? toArray(doc.getEmbedding()) : null;
+
+        for (int band = 0; band < BANDS; band++) {
+            long key = bandKey(signature, band);
+            for (int i = home(key); bandTable[i] != EMPTY; i = (i + 1) & bandTableMask) {
+                int slot = bandTable[i] / BANDS;
+                if (entryKey(bandTable[i]) == key && isDuplicate(signature, embedding, slot)) {
+                    duplicatesSkipped++;
+                    bytesSaved += payloadBytes(doc);
+                    return ids[slot];
+                }
+            }
+        }
+
+        add(doc.getId(), signature, embedding);
+        return null;
+    }
+
+    public long getDocumentsSeen() {
+        return documentsSeen;
+    }
+
+    public long getDuplicatesSkipped() {
+        return duplicatesSkipped;
+    }
+
+    public long getBytesSaved() {
+        return bytesSaved;
+    }
+
+    private boolean isDuplicate(int[] signature, float[] embedding, int slot) {
+        if (estimateJaccard(signature, signatures[slot]) < jaccardThreshold) {
+            return false;
+        }
+        if (embeddings == null || embedding == null || embeddings[slot] == null) {
+            return true;
+        }
+        return cosine(embedding, embeddings[slot]) >= cosineThreshold;
+    }
+
+    private void add(String id, int[] signature, float[] embedding) {
+        int slot = nextSlot;
+        if (size == capacity) {
+            evict(slot);
+        } else {
+            size++;
+        }
+
+        ids[slot] = id;
+        signatures[slot] = signature;
+        if (embeddings != null) {
+            embeddings[slot] = embedding;
+        }
+        for (int band = 0; band < BANDS; band++) {
+            insert(bandKey(signature, band), slot * BANDS + band, slot);
+        }
+        nextSlot = (slot + 1) % capacity;
+    }
+
+    private void insert(long key, int entry, int slot) {
+        int sameKey = 0;
+        int oldest = EMPTY;
+        int i = home(key);
+        for (; bandTable[i] != EMPTY; i = (i + 1) & bandTableMask) {
+            if (entryKey(bandTable[i]) == key) {
+                sameKey++;
+                if (oldest == EMPTY || age(bandTable[i] / BANDS, slot) > age(bandTable[oldest] / BANDS, slot)) {
+                    oldest = i;
+                }
+            }
+        }
+        if (sameKey >= MAX_SLOTS_PER_BUCKET) {
+            // Drop the oldest document in the bucket to keep lookups short
+            remove(oldest);
+            i = home(key);
+            while (bandTable[i] != EMPTY) {
+                i = (i + 1) & bandTableMask;
+            }
+        }
+        bandTable[i] = entry;
+    }
+
+    // Number of insertions since the given slot was filled, relative to the slot being filled now
+    private int age(int slot, int current) {
+        return (current - slot + capacity) % capacity;
+    }
+
+    private void evict(int slot) {
+        int[] old = signatures[slot];
+        for (int band = 0; band < BANDS; band++) {
+            int entry = slot * BANDS + band;
+            // The entry may already have been dropped from a full bucket
+            for (int i = home(bandKey(old, band)); bandTable[i] != EMPTY; i = (i + 1) & bandTableMask) {
+                if (bandTable[i] == entry) {
+                    remove(i);
+                    break;
+                }
+            }
+        }
+        ids[slot] = null;
+        signatures[slot] = null;
+        if (embeddings != null) {
+            embeddings[slot] = null;
+        }
+    }
+
+    /**
+     * Remove the table entry at index i, shifting later entries of the probe run back
+     * so lookups never stop early at the hole.
+     */
+    private void remove(int i) {
+        int j = i;
+        while (true) {
+            j = (j + 1) & bandTableMask;
+            if (bandTable[j] == EMPTY) {
+                break;
+            }
+            int h = home(entryKey(bandTable[j]));
+            // Move the entry back unless its home lies cyclically in (i, j]
+            boolean stays = i <= j ? (i < h && h <= j) : (i < h || h <= j);
+            if (!stays) {
+                bandTable[i] = bandTable[j];
+                i = j;
+            }
+        }
+        bandTable[i] = EMPTY;
+    }
+
+    private long entryKey(int entry) {
+        return bandKey(signatures[entry / BANDS], entry % BANDS);
+    }
+
+    private int home(long key) {
+        return (int) ((key * 0x9e3779b97f4a7c15L) >>> 33) & bandTableMask;
+    }
+
+    /**
+     * Build the MinHash signature of the text, or return null if it contains no words.
+     */
+    private int[] signature(String text) {
+        String[] tokens = text.toLowerCase().split("[^\\p{L}\\p{N}]+");
+        int start = tokens.length > 0 && tokens[0].isEmpty() ? 1 : 0;
+        if (tokens.length - start == 0) {
+            return null;
+        }
+
+        int[] signature = new int[NUM_HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        int shingles = Math.max(1, tokens.length - start - SHINGLE_SIZE + 1);
+
+        for (int s = 0; s < shingles; s++) {
+            long shingleHash = 0xcbf29ce484222325L;
+            for (int t = start + s; t < Math.min(tokens.length, start + s + SHINGLE_SIZE); t++) {
+                shingleHash = (shingleHash ^ tokens[t].hashCode()) * 0x100000001b3L;
+            }
+            for (int i = 0; i < NUM_HASHES; i++) {
+                int h = (int) ((shingleHash * hashMultipliers[i] + hashOffsets[i]) >>> 33);
+                if (h < signature[i]) {
+                    signature[i] = h;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private static String text(Document doc) {
+        StringBuilder text = new StringBuilder();
+        for (String field : new String[] {doc.getTitle(), doc.getContent()}) {
+            if (field != null) {
+                text.append(field).append(' ');
+            }
+        }
+        return text.toString();
+    }
+
+    private static long bandKey(int[] signature, int band) {
+        long key = band;
+        for (int i = band * ROWS_PER_BAND; i < (band + 1) * ROWS_PER_BAND; i++) {
+            key = key * 31 + signature[i];
+        }
+        return key;
+    }
+
+    private static double estimateJaccard(int[] a, int[] b) {
+        int matches = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                matches++;
+            }
+        }
+        return (double) matches / a.length;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0.0;
+        double normA = 0.0;
+        double normB = 0.0;
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        if (normA == 0 || normB == 0) {
+            return 0.0;
+        }
+        return dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+
+    private static float[] toArray(List<Float> vector) {
+        if (vector == null) {
+            return null;
+        }
+        float[] array = new float[vector.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = vector.get(i);
+        }
+        return array;
+    }
+
+    private static long payloadBytes(Document doc) {
+        long bytes = 0;
+        for (String field : new String[] {doc.getId(), doc.getTitle(), doc.getContent(), doc.getCategory()}) {
+            if (field != null) {
+                bytes += field.getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        if (doc.getEmbedding() != null) {
+            bytes += (long) doc.getEmbedding().size() * Float.BYTES;
+        }
+        return bytes;
+    }
+}
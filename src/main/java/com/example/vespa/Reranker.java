@@ -0,0 +1,194 @@
+package com.example.vespa;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Second-stage reranker that rescores the top candidates of a first-stage search.
+ *
+ * Candidates are split into batches in first-stage order and scored on a bounded
+ * worker pool. Scoring stops when the latency budget runs out or a batch fails.
+ * Only the leading run of completed batches is reordered; every later candidate
+ * keeps its first-stage position, so a slow batch never demotes higher-ranked hits.
+ *
+ * One instance can be shared across queries; its worker threads are started up front
+ * so the first query's budget is not spent on thread startup.
+ */
+public class Reranker implements AutoCloseable {
+
+    /**
+     * Scores a batch of (query, candidate) pairs. Higher scores rank first.
+     * Implementations must return one score per candidate and must not modify the candidates.
+     * Batches that miss the budget are cancelled by interrupting the worker; slow scorers
+     * (e.g. model inference) should check {@link Thread#isInterrupted()} and return early,
+     * otherwise abandoned batches keep the pool busy and eat into the next query's budget.
+     */
+    public interface Scorer {
+        double[] score(String query, List<SearchResult> batch);
+    }
+
+    private final Scorer scorer;
+    private final ThreadPoolExecutor executor;
+    private final int batchSize;
+
+    public Reranker(Scorer scorer, int threads, int batchSize) {
+        if (threads <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("threads and batchSize must be positive");
+        }
+        this.scorer = scorer;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "reranker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.executor.prestartAllCoreThreads();
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Rerank the first {@code topN} candidates within {@code budgetMillis} and return a
+     * new list; the candidates themselves are not modified.
+     *
+     * Results in the reranked prefix are new objects whose relevance is the reranker
+     * score. All later results are the original objects with their first-stage relevance,
+     * so relevance values are only comparable within each of the two parts.
+     */
+    public List<SearchResult> rerank(String query, List<SearchResult> candidates, int topN, long budgetMillis) {
+        int n = Math.min(topN, candidates.size());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+
+        List<List<SearchResult>> batches = new ArrayList<>();
+        List<Future<double[]>> futures = new ArrayList<>();
+        for (int start = 0; start < n; start += batchSize) {
+            // Workers may outlive this call, so give them a copy rather than a view of the caller's list
+            List<SearchResult> batch = new ArrayList<>(candidates.subList(start, Math.min(n, start + batchSize)));
+            batches.add(batch);
+            futures.add(executor.submit(() -> {
+                // Skip batches that only reach a worker after the budget has run out
+                if (System.nanoTime() - deadline >= 0) {
+                    throw new CancellationException("reranking budget exhausted");
+                }
+                return scorer.score(query, batch);
+            }));
+        }
+
+        List<SearchResult> rescored = new ArrayList<>();
+        int completed = 0;
+        while (completed < futures.size()) {
+            double[] scores = await(futures.get(completed), batches.get(completed).size(), deadline);
+            if (scores == null) {
+                break;
+            }
+            List<SearchResult> batch = batches.get(completed);
+            for (int j = 0; j < batch.size(); j++) {
+                rescored.add(withRelevance(batch.get(j), scores[j]));
+            }
+            completed++;
+        }
+        for (int i = completed; i < futures.size(); i++) {
+            futures.get(i).cancel(true);
+        }
+
+        rescored.sort(Comparator.comparingDouble(SearchResult::getRelevance).reversed());
+        List<SearchResult> results = new ArrayList<>(candidates.size());
+        results.addAll(rescored);
+        results.addAll(candidates.subList(rescored.size(), candidates.size()));
+        return results;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Wait for a batch until the deadline. Returns null if the batch timed out, failed
+     * or returned the wrong number of scores.
+     */
+    private static double[] await(Future<double[]> future, int batchSize, long deadline) {
+        long remaining = deadline - System.nanoTime();
+        try {
+            double[] scores = future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+            if (scores == null || scores.length != batchSize) {
+                System.err.println("Reranking batch returned " + (scores == null ? "no" : scores.length)
+                    + " scores for " + batchSize + " candidates");
+                return null;
+            }
+            return scores;
+        } catch (TimeoutException | CancellationException e) {
+            return null;
+        } catch (ExecutionException e) {
+            // A failed batch keeps its first-stage order rather than failing the query
+            if (!(e.getCause() instanceof CancellationException)) {
+                System.err.println("Reranking batch failed: " + e.getCause());
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static SearchResult withRelevance(SearchResult result, double relevance) {
+        SearchResult rescored = new SearchResult();
+        rescored.setId(result.getId());
+        rescored.setTitle(result.getTitle());
+        rescored.setContent(result.getContent());
+        rescored.setCategory(result.getCategory());
+        rescored.setRelevance(relevance);
+        return rescored;
+    }
+
+    /**
+     * Simple lexical scorer for demonstration purposes.
+     * In production, use a cross-encoder (e.g. ms-marco-MiniLM-L-6-v2 exported to ONNX)
+     * that reads the query and document text together.
+     */
+    public static class TermOverlapScorer implements Scorer {
+        @Override
+        public double[] score(String query, List<SearchResult> batch) {
+            Set<String> queryTerms = terms(query);
+            double[] scores = new double[batch.size()];
+            for (int i = 0; i < batch.size(); i++) {
+                SearchResult result = batch.get(i);
+                Set<String> titleTerms = terms(result.getTitle());
+                Set<String> contentTerms = terms(result.getContent());
+                double score = 0.0;
+                for (String term : queryTerms) {
+                    if (titleTerms.contains(term)) {
+                        score += 2.0;
+                    }
+                    if (contentTerms.contains(term)) {
+                        score += 1.0;
+                    }
+                }
+                scores[i] = queryTerms.isEmpty() ? 0.0 : score / (3.0 * queryTerms.size());
+            }
+            return scores;
+        }
+
+        private static Set<String> terms(String text) {
+            Set<String> terms = new HashSet<>();
+            if (text == null) {
+                return terms;
+            }
+            for (String token : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+                if (!token.isEmpty()) {
+                    terms.add(token);
+                }
+            }
+            return terms;
+        }
+    }
+}
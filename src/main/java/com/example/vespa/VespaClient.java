@@ -75,6 +75,14 @@ public class VespaClient {
      * Perform hybrid search combining keyword and semantic search
      */
     public List<SearchResult> hybridSearch(String query, List<Float> queryEmbedding, int hits) throws IOException {
+        return hybridSearch(query, queryEmbedding, hits, "hybrid");
+    }
+
+    /**
+     * Perform hybrid search using the given rank profile, e.g. "rerank" to apply
+     * the global-phase reranking defined in the schema
+     */
+    public List<SearchResult> hybridSearch(String query, List<Float> queryEmbedding, int hits, String rankProfile) throws IOException {
         // Build YQL query for hybrid search
         StringBuilder yql = new StringBuilder();
         yql.append("select * from sources * where ");
@@ -88,7 +96,7 @@ public class VespaClient {
 
         String url = SEARCH_API + "?yql=" + java.net.URLEncoder.encode(yql.toString(), StandardCharsets.UTF_8)
                 + "&query=" + java.net.URLEncoder.encode(query, StandardCharsets.UTF_8)
-                + "&ranking=hybrid"
+                + "&ranking=" + java.net.URLEncoder.encode(rankProfile, StandardCharsets.UTF_8)
                 + "&hits=" + hits;
 
         // Add query embedding if provided